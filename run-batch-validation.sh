@@ -0,0 +1,67 @@
+#!/usr/bin/env bash
+#
+# Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+#
+# Helper script to validate many bags in one run using the Maven project.
+#
+#
+
+DEBUG_PORT=8001
+MAIN_CLASS="nl.knaw.dans.sword2examples.BatchValidateBags"
+SUSPEND=n
+if [[ "$1" == "--suspend" ]]; then
+ SUSPEND=y
+ shift 1
+fi
+
+SERVICE_URL=$1
+USER=$2
+PASSWORD=$3
+CONCURRENCY=$4
+RESULT_DIR=$5
+BAGS=${@:6}
+
+KEYSTORE_FILE=$HOME/.keystore
+KEYSTORE_PASSWORD=${KEYSTORE_PASSWORD:-changeit}
+TRANSPORT=${TRANSPORT:-apache}
+
+JARFILE=$(ls -1 target/*SNAPSHOT.jar)
+
+if (( $# < 6 )); then
+ echo "Runs the test program $MAIN_CLASS that sends many zipped bags to the validator to verify"
+ echo "if they comply with the DANS BagIt Profile rules."
+ echo "Usage: ./run-batch-validation.sh [--suspend] <VALIDATOR-URL> <user> <password> <concurrency> <result-dir> <bag>..."
+ echo "Where:"
+ echo "--suspend = suspend execution at the start so as to allow a debugger to attach at port $DEBUG_PORT"
+ echo "<VALIDATOR-URL> = the validator end-point: https://demo.sword2.domain.datastations.nl/validate-dans-bag, where 'domain' is"
+ echo "  one of the domain-specific Data Stations, e.g. 'archaeology' or 'ssh'"
+ echo "<concurrency> = the maximum number of bags that are processed at the same time"
+ echo "<result-dir> = directory to write the validation results to; a summary is written to results.jsonl"
+ echo "<bag> = one or more bag directories or zip files to validate, or directories containing bags"
+ exit
+fi
+
+if [[ -f $KEYSTORE_FILE ]]; then
+  KEYSTORE_PROPERTIES="-Djavax.net.ssl.trustStore=$KEYSTORE_FILE -Djavax.net.ssl.trustStorePassword=$KEYSTORE_PASSWORD"
+else
+  KEYSTORE_PROPERTIES=""
+fi
+
+if [[ ! -d target/dependency ]]; then
+  mvn dependency:copy-dependencies
+fi
+java  $KEYSTORE_PROPERTIES -Dsword2examples.transport=$TRANSPORT -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $SERVICE_URL $USER $PASSWORD $CONCURRENCY $RESULT_DIR $BAGS
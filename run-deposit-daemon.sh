@@ -0,0 +1,67 @@
+#!/usr/bin/env bash
+#
+# Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+#
+# Helper script to run the deposit daemon using the Maven project.
+#
+#
+
+DEBUG_PORT=8000
+MAIN_CLASS="nl.knaw.dans.sword2examples.DepositDaemon"
+SUSPEND=n
+if [[ "$1" == "--suspend" ]]; then
+ SUSPEND=y
+ shift 1
+fi
+
+COL_IRI=$1
+USER=$2
+PASSWORD=$3
+BASE_DIR=$4
+WORKERS=$5
+CHUNKSIZE=$6
+JARFILE=$(ls -1 target/*SNAPSHOT.jar)
+KEYSTORE_FILE=$HOME/.keystore
+KEYSTORE_PASSWORD=${KEYSTORE_PASSWORD:-changeit}
+TRANSPORT=${TRANSPORT:-apache}
+XML_OUTPUT=${XML_OUTPUT:-off}
+
+if (( $# < 5 )); then
+ echo "Runs the test program $MAIN_CLASS that watches <base-dir>/inbox and sends every bag that is moved into it to the SWORD2 service."
+ echo "Published bags are moved to <base-dir>/outbox, other bags to <base-dir>/failed."
+ echo "Usage: ./run-deposit-daemon.sh [--suspend] <COL-IRI> <user> <password> <base-dir> <workers> [<chunksize>]"
+ echo "Where:"
+ echo "--suspend = suspend execution at the start so as to allow a debugger to attach at port $DEBUG_PORT"
+ echo "<COL-IRI> = the collection IRI to post to"
+ echo "<user> = Data Station user account"
+ echo "<password> = password for <user>"
+ echo "<base-dir> = directory containing inbox, outbox, failed and the state file"
+ echo "<workers> = the maximum number of bags that are sent at the same time"
+ echo "<chunksize> = size in byte of each chunk; if omitted bags are sent in one request"
+ exit
+fi
+
+if [[ -f $KEYSTORE_FILE ]]; then
+  KEYSTORE_PROPERTIES="-Djavax.net.ssl.trustStore=$KEYSTORE_FILE -Djavax.net.ssl.trustStorePassword=$KEYSTORE_PASSWORD"
+else
+  KEYSTORE_PROPERTIES=""
+fi
+
+if [[ ! -d target/dependency ]]; then
+  mvn dependency:copy-dependencies
+fi
+java $KEYSTORE_PROPERTIES -Dsword2examples.transport=$TRANSPORT -Dsword2examples.xmlOutput=$XML_OUTPUT -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $COL_IRI $USER $PASSWORD $BASE_DIR $WORKERS $CHUNKSIZE
@@ -35,6 +35,8 @@ PASSWORD=$4
 JARFILE=$(ls -1 target/*SNAPSHOT.jar)
 KEYSTORE_FILE=$HOME/.keystore
 KEYSTORE_PASSWORD=${KEYSTORE_PASSWORD:-changeit}
+TRANSPORT=${TRANSPORT:-apache}
+XML_OUTPUT=${XML_OUTPUT:-pretty}
 
 if (( $# < 5 )); then
  echo "Runs one of the test programs to send one or more bags to the SWORD2 service."
@@ -65,4 +67,4 @@ else
 fi
 
 mvn dependency:copy-dependencies
-java $KEYSTORE_PROPERTIES -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $COL_IRI $USER $PASSWORD $CHUNKSIZE $BAGDIRS
+java $KEYSTORE_PROPERTIES -Dsword2examples.transport=$TRANSPORT -Dsword2examples.xmlOutput=$XML_OUTPUT -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $COL_IRI $USER $PASSWORD $CHUNKSIZE $BAGDIRS
@@ -35,6 +35,7 @@ PASSWORD=$4
 
 KEYSTORE_FILE=$HOME/.keystore
 KEYSTORE_PASSWORD=${KEYSTORE_PASSWORD:-changeit}
+TRANSPORT=${TRANSPORT:-apache}
 
 JARFILE=$(ls -1 target/*SNAPSHOT.jar)
 
@@ -57,4 +58,4 @@ else
 fi
 
 mvn dependency:copy-dependencies
-java  $KEYSTORE_PROPERTIES -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $SERVICE_URL $BAG $USER $PASSWORD
+java  $KEYSTORE_PROPERTIES -Dsword2examples.transport=$TRANSPORT -agentlib:jdwp=transport=dt_socket,server=y,address=$DEBUG_PORT,suspend=$SUSPEND -cp "target/dependency/*:$JARFILE" $MAIN_CLASS $SERVICE_URL $BAG $USER $PASSWORD
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link SwordTransport} on top of Apache HttpClient 4. Requests block the thread they run on; they are executed by the given executor, which may simply run
+ * them on the calling thread (<code>Runnable::run</code>).
+ */
+public class ApacheHttpTransport implements SwordTransport {
+    private final CloseableHttpClient http;
+    private final Executor executor;
+
+    public ApacheHttpTransport(CloseableHttpClient http, Executor executor) {
+        this.http = http;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, byte[] chunk) {
+        return send(method, uri, filename, md5, inProgress, new ByteArrayEntity(chunk, ContentType.create(mimeType)));
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, File file) {
+        return send(method, uri, filename, md5, inProgress, new FileEntity(file, ContentType.create(mimeType)));
+    }
+
+    private CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String md5, boolean inProgress, HttpEntity entity) {
+        RequestBuilder builder = RequestBuilder.create(method).setUri(uri).setConfig(RequestConfig.custom()
+                /*
+                 * When using an HTTPS-connection EXPECT-CONTINUE must be enabled, otherwise buffer overflow may follow
+                 */
+                .setExpectContinueEnabled(true).build()) //
+            .setEntity(entity);
+        Common.depositHeaders(filename, md5, inProgress).forEach(builder::addHeader);
+        return execute(builder.build());
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> get(URI uri) {
+        return execute(RequestBuilder.get(uri).build());
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> post(URI uri, File file, String contentType, String accept) {
+        RequestBuilder builder = RequestBuilder
+            .post(uri)
+            .setHeader("Content-Type", contentType)
+            .setEntity(new FileEntity(file));
+        if (accept != null) {
+            builder.setHeader("Accept", accept);
+        }
+        return execute(builder.build());
+    }
+
+    private CompletableFuture<SwordResponse> execute(HttpUriRequest request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String xAuthorization = Common.readXAuthorization();
+                if (xAuthorization != null) {
+                    request.addHeader("X-Authorization", xAuthorization);
+                }
+                CloseableHttpResponse response = http.execute(request);
+                HttpEntity entity = response.getEntity();
+                InputStream body = entity == null ? InputStream.nullInputStream() : entity.getContent();
+                return new SwordResponse(response.getStatusLine().getStatusCode(), response.getStatusLine().toString(), body, response);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        http.close();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Validates many bags in one run. Bags are staged and zipped in parallel and posted to the validate-dans-bag end-point with at most <code>concurrency</code>
+ * requests in flight, sharing one transport. The response for each bag is streamed to its own file in the result directory, and a summary line is appended
+ * to <code>results.jsonl</code> in that directory for every bag. The summary line includes the compliance flag from the response, so that non-compliant bags
+ * can be found without opening every response file.
+ * <p>
+ * The program exits with status 1 if any bag could not be validated, with status 2 if all bags were validated but some are not compliant, and with status 0
+ * otherwise.
+ */
+public class BatchValidateBags {
+    private static final String RESULTS_FILE_NAME = "results.jsonl";
+    private static final Pattern IS_COMPLIANT = Pattern.compile("\"Is compliant\"\\s*:\\s*(true|false)");
+
+    /**
+     * @param args 0. validate-dans-bag URL, 1. user name, 2. password, 3. maximum number of bags processed concurrently, 4. result directory, 5... bags to
+     *             validate (directories or zip files) or directories containing bags
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.err.printf("Usage: java %s <validate-dans-bag-url> <user> <password> <concurrency> <result dir> <bag file/dir or dir of bags>...",
+                BatchValidateBags.class.getName());
+            System.exit(1);
+        }
+        var validateDansBagUrl = new URI(args[0]);
+        var user = args[1];
+        var password = args[2];
+        var concurrency = Integer.parseInt(args[3]);
+        var resultDir = new File(args[4]);
+
+        var bags = findBags(Arrays.copyOfRange(args, 5, args.length));
+        System.out.printf("Validating %d bag(s) with concurrency %d ...%n", bags.size(), concurrency);
+
+        // Each run gets its own staging directory, so that concurrent runs do not delete each other's bags
+        var target = new File("target");
+        FileUtils.forceMkdir(target);
+        var stagingDir = Files.createTempDirectory(target.toPath(), "batch-validation-").toFile();
+        FileUtils.forceMkdir(resultDir);
+
+        var failures = new AtomicInteger();
+        var nonCompliant = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try (SwordTransport transport = Common.createTransport(validateDansBagUrl, user, password, concurrency);
+            BufferedWriter results = Files.newBufferedWriter(new File(resultDir, RESULTS_FILE_NAME).toPath(), StandardCharsets.UTF_8)) {
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < bags.size(); ++i) {
+                    var bag = bags.get(i);
+                    // Each bag gets its own staging directory, so that bags with the same name do not overwrite each other
+                    var bagStagingDir = new File(stagingDir, Integer.toString(i));
+                    var resultFile = new File(resultDir, String.format("%05d-%s.json", i, bag.getName()));
+                    futures.add(executor.submit(() -> {
+                        var line = validate(bag, bagStagingDir, resultFile, validateDansBagUrl, user, transport, failures, nonCompliant);
+                        synchronized (results) {
+                            results.write(line);
+                            results.newLine();
+                            results.flush();
+                        }
+                        return null;
+                    }));
+                }
+                for (var future : futures) {
+                    future.get();
+                }
+            }
+            finally {
+                // On an error the remaining validations are cancelled; wait for them, so that none of them uses the transport after it is closed
+                executor.shutdownNow();
+                while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    System.err.println("Waiting for validations in progress to stop ...");
+                }
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(stagingDir);
+        }
+        System.out.printf("Done. %d bag(s) could not be validated, %d bag(s) are not compliant. Results written to %s%n", failures.get(), nonCompliant.get(),
+            resultDir);
+        if (failures.get() > 0) {
+            System.exit(1);
+        }
+        if (nonCompliant.get() > 0) {
+            System.exit(2);
+        }
+    }
+
+    private static String validate(File bag, File bagStagingDir, File resultFile, URI validateDansBagUrl, String user, SwordTransport transport,
+        AtomicInteger failures, AtomicInteger nonCompliant) {
+        try {
+            var bagInStaging = Common.copyToBagDirectory(bag, bagStagingDir);
+            var zippedBagInStaging = new File(bagInStaging + ".zip");
+            // Adding Data-Station-User-Account because we are calling the validator directly. When depositing to the SWORD2 service you don't have to do this, because SWORD2 will take care of it for you.
+            Common.setDataStationUserAccount(bagInStaging, user);
+            Common.zipDirectory(bagInStaging, zippedBagInStaging);
+            int status;
+            try (var response = Common.await(transport.post(validateDansBagUrl, zippedBagInStaging, "application/zip", "application/json"));
+                OutputStream out = new FileOutputStream(resultFile)) {
+                response.getBody().transferTo(out);
+                status = response.getStatusCode();
+            }
+            String compliant = "null";
+            if (status == 200) {
+                Matcher m = IS_COMPLIANT.matcher(FileUtils.readFileToString(resultFile, StandardCharsets.UTF_8));
+                if (m.find()) {
+                    compliant = m.group(1);
+                }
+            }
+            System.out.printf("%s: %d, compliant: %s%n", bag, status, compliant);
+            if (status != 200 || "null".equals(compliant)) {
+                failures.incrementAndGet();
+            }
+            else if ("false".equals(compliant)) {
+                nonCompliant.incrementAndGet();
+            }
+            return String.format("{\"bag\":\"%s\",\"status\":%d,\"compliant\":%s,\"result\":\"%s\"}", jsonEscape(bag.getPath()), status, compliant,
+                jsonEscape(resultFile.getPath()));
+        }
+        catch (Exception e) {
+            System.err.printf("%s: ERROR %s%n", bag, e.getMessage());
+            failures.incrementAndGet();
+            return String.format("{\"bag\":\"%s\",\"error\":\"%s\"}", jsonEscape(bag.getPath()), jsonEscape(String.valueOf(e.getMessage())));
+        }
+        finally {
+            // Also when staging fails, e.g. on a malformed bag, so that a large batch cannot fill up the disk
+            FileUtils.deleteQuietly(bagStagingDir);
+        }
+    }
+
+    /**
+     * Returns the bags to validate. A directory containing a <code>bagit.txt</code> and any other file are taken to be bags, other directories are expected to
+     * contain bags (directories or zip files).
+     *
+     * @param paths the command line arguments naming bags or directories of bags
+     * @return the bags
+     */
+    private static List<File> findBags(String[] paths) {
+        List<File> bags = new ArrayList<>();
+        for (var path : paths) {
+            var file = new File(path);
+            if (file.isDirectory() && !new File(file, "bagit.txt").exists()) {
+                var children = file.listFiles(f -> f.isDirectory() || f.getName().endsWith(".zip"));
+                if (children != null) {
+                    Arrays.sort(children);
+                    bags.addAll(Arrays.asList(children));
+                }
+            }
+            else {
+                bags.add(file);
+            }
+        }
+        return bags;
+    }
+
+    private static String jsonEscape(String s) {
+        var sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -30,46 +30,57 @@ import org.apache.abdera.model.Feed;
 import org.apache.abdera.model.Link;
 import org.apache.abdera.parser.Parser;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.io.Writer;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.DigestInputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class Common {
     static final String BAGIT_URI = "http://purl.org/net/sword/package/BagIt";
 
+    /**
+     * System property selecting the {@link SwordTransport} created by {@link #createTransport(URI, String, String, int)}: <code>apache</code> (the default)
+     * or <code>java</code>.
+     */
+    public static final String TRANSPORT_PROPERTY = "sword2examples.transport";
+
+    /**
+     * System property selecting how {@link #printXml(String)} prints receipts and statements: <code>pretty</code> (the default), <code>raw</code> (as received)
+     * or <code>off</code>.
+     */
+    public static final String XML_OUTPUT_PROPERTY = "sword2examples.xmlOutput";
+
+    // Abdera.getInstance() is synchronized and its parser is thread-safe, so look it up only once, when it is first needed
+    private static class ParserHolder {
+        static final Parser PARSER = Abdera.getInstance().getParser();
+    }
+
     /**
      * Assumes the entity is UTF-8 encoded text and reads it into a String.
      *
@@ -84,99 +95,145 @@ public class Common {
     }
 
     public static <T extends Element> T parse(String text) {
-        Abdera abdera = Abdera.getInstance();
-        Parser parser = abdera.getParser();
-        Document<T> receipt = parser.parse(new StringReader(text));
+        Document<T> receipt = ParserHolder.PARSER.parse(new StringReader(text));
         return receipt.getRoot();
     }
 
-    static URI trackDeposit(CloseableHttpClient http, URI statUri) throws Exception {
-        CloseableHttpResponse response;
-        String bodyText;
-        System.out.println("Start polling Stat-IRI for the current status of the deposit, waiting 10 seconds before every request ...");
+    /**
+     * Returns the text to start every line of output about a deposit with.
+     *
+     * @param label a label, e.g. the bag name, or <code>null</code> for none
+     * @return <code>[label] </code>, or an empty string if there is no label
+     */
+    static String labelPrefix(String label) {
+        return label == null ? "" : "[" + label + "] ";
+    }
+
+    static URI trackDeposit(SwordTransport transport, URI statUri) throws Exception {
+        return trackDeposit(transport, statUri, null);
+    }
+
+    /**
+     * Polls the Stat-IRI every ten seconds until the deposit is published or has failed.
+     *
+     * @param transport the transport to use
+     * @param statUri   the Stat-IRI of the deposit
+     * @param label     a label, e.g. the bag name, to start every line of output with, or <code>null</code> for none
+     * @return the URI of the published bag
+     * @throws DepositException if the deposit fails
+     */
+    static URI trackDeposit(SwordTransport transport, URI statUri, String label) throws Exception {
+        return trackDeposit(transport, statUri, label, 10000);
+    }
+
+    /**
+     * Polls the Stat-IRI until the deposit is published or has failed.
+     *
+     * @param transport          the transport to use
+     * @param statUri            the Stat-IRI of the deposit
+     * @param label              a label, e.g. the bag name, to start every line of output with, or <code>null</code> for none
+     * @param pollIntervalMillis the time to wait before every request, in milliseconds
+     * @return the URI of the published bag
+     * @throws DepositException if the deposit fails
+     */
+    static URI trackDeposit(SwordTransport transport, URI statUri, String label, long pollIntervalMillis) throws Exception {
+        String prefix = labelPrefix(label);
+        System.out.println(prefix + "Start polling Stat-IRI for the current status of the deposit, waiting " + pollIntervalMillis + " ms before every request ...");
         while (true) {
-            Thread.sleep(10000);
-            System.out.print("Checking deposit status ... ");
-            response = http.execute(addXAuthorizationToRequest(new HttpGet(statUri)));
-            if (response.getStatusLine().getStatusCode() != 200) {
-                System.out.println("Stat-IRI returned " + response.getStatusLine().getStatusCode());
-                System.exit(1);
+            Thread.sleep(pollIntervalMillis);
+            URI bagUri = checkDeposit(transport, statUri, label);
+            if (bagUri != null) {
+                return bagUri;
             }
-            bodyText = readEntityAsString(response.getEntity());
-            Feed statement = parse(bodyText);
-            List<Category> states = statement.getCategories("http://purl.org/net/sword/terms/state");
-            if (states.isEmpty()) {
-                System.err.println("ERROR: NO STATE FOUND");
-                System.exit(1);
+        }
+    }
+
+    /**
+     * Retrieves the statement of a deposit once and reports its state. Every state is printed as one line, so that the output of deposits that are tracked at
+     * the same time can be told apart.
+     *
+     * @param transport the transport to use
+     * @param statUri   the Stat-IRI of the deposit
+     * @param label     a label, e.g. the bag name, to start every line of output with, or <code>null</code> for none
+     * @return the URI of the published bag, or <code>null</code> if the deposit is still in progress
+     * @throws DepositException if the deposit has failed
+     */
+    static URI checkDeposit(SwordTransport transport, URI statUri, String label) throws Exception {
+        String prefix = labelPrefix(label);
+        String bodyText;
+        try (SwordResponse response = await(transport.get(statUri))) {
+            if (response.getStatusCode() != 200) {
+                System.out.println(prefix + "Checking deposit status ... Stat-IRI returned " + response.getStatusCode());
+                throw new DepositException("Stat-IRI returned " + response.getStatusCode(), 1);
             }
-            else if (states.size() > 1) {
-                System.err.println("ERROR: FOUND TOO MANY STATES (" + states.size() + "). CAN ONLY HANDLE ONE");
-                System.exit(1);
+            bodyText = response.readBodyAsString();
+        }
+        Feed statement = parse(bodyText);
+        List<Category> states = statement.getCategories("http://purl.org/net/sword/terms/state");
+        if (states.isEmpty()) {
+            System.err.println(prefix + "ERROR: NO STATE FOUND");
+            throw new DepositException("No state found", 1);
+        }
+        else if (states.size() > 1) {
+            System.err.println(prefix + "ERROR: FOUND TOO MANY STATES (" + states.size() + "). CAN ONLY HANDLE ONE");
+            throw new DepositException("Found too many states (" + states.size() + ")", 1);
+        }
+        String state = states.get(0).getTerm();
+        System.out.println(prefix + "Checking deposit status ... " + state);
+        if (state.equals("INVALID") || state.equals("REJECTED") || state.equals("FAILED")) {
+            System.err.println(prefix + "FAILURE.");
+            printXml(prefix + "Complete statement follows:", bodyText, System.err);
+            throw new DepositException("Deposit ended in state " + state, 3);
+        }
+        else if (state.equals("PUBLISHED")) {
+            List<Entry> entries = statement.getEntries();
+            // Without an entry there is no bag ID to return; report it as a failure rather than let the caller poll forever
+            if (entries.isEmpty() || entries.get(0).getId() == null) {
+                System.err.println(prefix + "ERROR: PUBLISHED, BUT NO BAG ID FOUND IN STATEMENT");
+                throw new DepositException("No bag ID found in statement of published deposit", 1);
             }
-            else {
-                String state = states.get(0).getTerm();
-                System.out.println(state);
-                if (state.equals("INVALID") || state.equals("REJECTED") || state.equals("FAILED")) {
-                    System.err.println("FAILURE. Complete statement follows:");
-                    System.err.println(bodyText);
-                    System.exit(3);
-                }
-                else if (state.equals("PUBLISHED")) {
-                    List<Entry> entries = statement.getEntries();
-                    System.out.println("SUCCESS. ");
-                    if (entries.size() == 1) {
-                        List<String> dois = getDois(entries.get(0));
-                        int numDois = dois.size();
-                        switch (numDois) {
-                            case 1:
-                                System.out.println("Dataset has been published as: <" + dois.get(0) + ">. ");
-                                break;
-                            case 0:
-                                System.out.println("WARNING: No DOI found");
-                                break;
-                            default:
-                                System.out.println("WARNING: More than one DOI found (" + numDois + "): ");
-                                boolean first = true;
-                                for (String doi : dois) {
-                                    if (first)
-                                        first = false;
-                                    else
-                                        System.out.print(", ");
-                                    System.out.print(doi + "");
-
-                                }
-                                System.out.println();
-                                break;
-                        }
-                        List<String> nbns = getNbn(entries.get(0));
-                        int numNbns = nbns.size();
-                        switch (numNbns) {
-                            case 1:
-                                System.out.println("Dataset NBN: <" + nbns.get(0) + ">. ");
-                                break;
-                            case 0:
-                                System.out.println("WARNING: No NBN found");
-                                break;
-                            default:
-                                System.out.println("WARNING: More than one NBN found (" + nbns + "): ");
-                                break;
-                        }
-                        System.out.println("Bag ID for this version of the dataset: " + entries.get(0).getId());
-                    }
-                    else {
-                        System.out.println("WARNING: Found (" + entries.size() + ") entry's; should be ONE and only ONE");
-                    }
-                    String stateText = states.get(0).getText();
-                    System.out.println("State description: " + stateText + "");
-                    System.out.println("Complete statement follows:");
-                    printXml(bodyText);
-                    return entries.get(0).getId().toURI();
+            System.out.println(prefix + "SUCCESS. ");
+            if (entries.size() == 1) {
+                List<String> dois = getDois(entries.get(0));
+                int numDois = dois.size();
+                switch (numDois) {
+                    case 1:
+                        System.out.println(prefix + "Dataset has been published as: <" + dois.get(0) + ">. ");
+                        break;
+                    case 0:
+                        System.out.println(prefix + "WARNING: No DOI found");
+                        break;
+                    default:
+                        System.out.println(prefix + "WARNING: More than one DOI found (" + numDois + "): " + String.join(", ", dois));
+                        break;
                 }
-                else if (!"SUBMITTED".equals(state)) {
-                    System.out.println("Unknown status: " + state);
+                List<String> nbns = getNbn(entries.get(0));
+                int numNbns = nbns.size();
+                switch (numNbns) {
+                    case 1:
+                        System.out.println(prefix + "Dataset NBN: <" + nbns.get(0) + ">. ");
+                        break;
+                    case 0:
+                        System.out.println(prefix + "WARNING: No NBN found");
+                        break;
+                    default:
+                        System.out.println(prefix + "WARNING: More than one NBN found (" + nbns + "): ");
+                        break;
                 }
+                System.out.println(prefix + "Bag ID for this version of the dataset: " + entries.get(0).getId());
+            }
+            else {
+                System.out.println(prefix + "WARNING: Found (" + entries.size() + ") entry's; should be ONE and only ONE");
             }
+            String stateText = states.get(0).getText();
+            System.out.println(prefix + "State description: " + stateText + "");
+            printXml(prefix + "Complete statement follows:", bodyText, System.out);
+            return entries.get(0).getId().toURI();
+        }
+        else if (!"SUBMITTED".equals(state)) {
+            System.out.println(prefix + "Unknown status: " + state);
         }
+        return null;
     }
 
     public static List<String> getDois(Entry entry) {
@@ -220,34 +277,118 @@ public class Common {
         return HttpClients.custom().setDefaultCredentialsProvider(credsProv).build();
     }
 
-    public static CloseableHttpResponse sendChunk(DigestInputStream dis, int size, String method, URI uri, String filename, String mimeType,
-        CloseableHttpClient http, boolean inProgress) throws Exception {
+    /**
+     * Creates an HTTP client that can be shared by multiple threads, allowing at most <code>maxConnections</code> simultaneous connections to the server.
+     *
+     * @param uri            the URI of the server, used to scope the credentials
+     * @param uid            the user name
+     * @param pw             the password
+     * @param maxConnections the maximum number of simultaneous connections
+     * @return the HTTP client
+     */
+    public static CloseableHttpClient createHttpClient(URI uri, String uid, String pw, int maxConnections) {
+        BasicCredentialsProvider credsProv = new BasicCredentialsProvider();
+        credsProv.setCredentials(new AuthScope(uri.getHost(), uri.getPort()), new UsernamePasswordCredentials(uid, pw));
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        return HttpClients.custom().setDefaultCredentialsProvider(credsProv).setConnectionManager(connectionManager).build();
+    }
+
+    /**
+     * Creates the transport selected by the system property {@link #TRANSPORT_PROPERTY}. The Apache HttpClient transport executes requests on the calling
+     * thread; the java.net.http transport sends them asynchronously, on virtual threads if available.
+     *
+     * @param uri            the URI of the server, used to scope the credentials
+     * @param uid            the user name
+     * @param pw             the password
+     * @param maxConnections the maximum number of simultaneous connections (only used by the Apache HttpClient transport)
+     * @return the transport
+     */
+    public static SwordTransport createTransport(URI uri, String uid, String pw, int maxConnections) {
+        String transport = System.getProperty(TRANSPORT_PROPERTY, "apache");
+        switch (transport) {
+            case "apache":
+                return new ApacheHttpTransport(createHttpClient(uri, uid, pw, maxConnections), Runnable::run);
+            case "java":
+                return new JavaHttpTransport(uri, uid, pw);
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + transport + "; expected apache or java");
+        }
+    }
+
+    /**
+     * Waits for the transport to complete a request.
+     *
+     * @param response the pending response
+     * @return the response
+     * @throws Exception the exception with which the request failed
+     */
+    public static SwordResponse await(CompletableFuture<SwordResponse> response) throws Exception {
+        try {
+            return response.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    public static SwordResponse sendChunk(DigestInputStream dis, int size, String method, URI uri, String filename, String mimeType,
+        SwordTransport transport, boolean inProgress) throws Exception {
         // System.out.println(String.format("Sending chunk to %s, filename = %s, chunk size = %d, MIME-Type = %s, In-Progress = %s ... ", uri.toString(),
         // filename, size, mimeType, Boolean.toString(inProgress)));
         byte[] chunk = readChunk(dis, size);
         String md5 = new String(Hex.encodeHex(dis.getMessageDigest().digest()));
-        HttpUriRequest request = RequestBuilder.create(method).setUri(uri).setConfig(RequestConfig.custom()
-                /*
-                 * When using an HTTPS-connection EXPECT-CONTINUE must be enabled, otherwise buffer overflow may follow
-                 */
-                .setExpectContinueEnabled(true).build()) //
-            .addHeader("Content-Disposition", String.format("attachment; filename=%s", filename)) //
-            .addHeader("Content-MD5", md5) //
-            .addHeader("Packaging", BAGIT_URI) //
-            .addHeader("In-Progress", Boolean.toString(inProgress)) //
-            .setEntity(new ByteArrayEntity(chunk, ContentType.create(mimeType))) //
-            .build();
-        CloseableHttpResponse response = http.execute(addXAuthorizationToRequest(request));
+        SwordResponse response = await(transport.send(method, uri, filename, mimeType, md5, inProgress, chunk));
         // System.out.println("Response received.");
         return response;
     }
 
-    private static HttpUriRequest addXAuthorizationToRequest(HttpUriRequest request) throws Exception {
+    /**
+     * Sends an entire file as one chunk. The file is streamed by the transport instead of being read into memory.
+     */
+    public static SwordResponse sendFile(File file, String method, URI uri, String filename, String mimeType, SwordTransport transport, boolean inProgress)
+        throws Exception {
+        String md5;
+        try (InputStream is = new FileInputStream(file)) {
+            md5 = DigestUtils.md5Hex(is);
+        }
+        return await(transport.send(method, uri, filename, mimeType, md5, inProgress, file));
+    }
+
+    /**
+     * Returns the headers that SWORD2 requires on every (part of a) deposit.
+     *
+     * @param filename   the filename for the Content-Disposition header
+     * @param md5        the hex encoded MD5 of the content
+     * @param inProgress whether more chunks will follow
+     * @return the headers, in the order they should be sent
+     */
+    public static Map<String, String> depositHeaders(String filename, String md5, boolean inProgress) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Disposition", String.format("attachment; filename=%s", filename));
+        headers.put("Content-MD5", md5);
+        headers.put("Packaging", BAGIT_URI);
+        headers.put("In-Progress", Boolean.toString(inProgress));
+        return headers;
+    }
+
+    /**
+     * Returns the value for the X-Authorization header, which is read from the file <code>x-auth-value.txt</code> in the working directory, if it exists.
+     *
+     * @return the value or <code>null</code> if there is no such file
+     * @throws IOException if the file cannot be read
+     */
+    public static String readXAuthorization() throws IOException {
         File autValueFile = new File("x-auth-value.txt");
         if (autValueFile.exists()) {
-            request.addHeader("X-Authorization", FileUtils.readFileToString(autValueFile).trim());
+            return FileUtils.readFileToString(autValueFile, StandardCharsets.UTF_8).trim();
         }
-        return request;
+        return null;
     }
 
     public static void setBagIsVersionOf(File bagDir, URI versionOfUri) throws Exception {
@@ -282,9 +423,20 @@ public class Common {
      * @return a bag directory under the "target" folder
      */
     public static File copyToBagDirectoryInTarget(File bag) throws Exception {
+        return copyToBagDirectory(bag, new File("target"));
+    }
+
+    /**
+     * Copies bag to <code>stagingDir</code> and extracts it, if it is a zipfile. Existing sub-directory of the same name will be overwritten.
+     *
+     * @param bag        the bag file or folder
+     * @param stagingDir the folder to copy the bag to
+     * @return a bag directory under <code>stagingDir</code>
+     */
+    public static File copyToBagDirectory(File bag, File stagingDir) throws Exception {
         File dirInTarget = null;
         if (bag.isDirectory()) {
-            dirInTarget = new File("target", bag.getName());
+            dirInTarget = new File(stagingDir, bag.getName());
             FileUtils.deleteQuietly(dirInTarget);
             FileUtils.copyDirectory(bag, dirInTarget);
         }
@@ -292,14 +444,14 @@ public class Common {
             try (var zf = new ZipFile(bag)) {
                 if (!zf.isValidZipFile()) {
                     System.err.println("ERROR: The submitted bag is not a valid directory or Zipfile");
-                    System.exit(1);
+                    throw new DepositException("Not a valid directory or Zipfile: " + bag, 1);
                 }
                 else {
-                    var zipInTarget = new File("target", bag.getName());
+                    var zipInTarget = new File(stagingDir, bag.getName());
                     FileUtils.deleteQuietly(zipInTarget);
-                    dirInTarget = new File("target", ZipUtil.getBaseDirName(bag.toString()));
+                    dirInTarget = new File(stagingDir, ZipUtil.getBaseDirName(bag.toString()));
                     FileUtils.deleteQuietly(dirInTarget);
-                    zf.extractAll("target");
+                    zf.extractAll(stagingDir.getPath());
                 }
             }
         }
@@ -307,44 +459,57 @@ public class Common {
     }
 
     public static void validateZip(File zippedBag, URI uri, String user, String password) throws Exception {
-        try (CloseableHttpClient httpClient = createHttpClient(uri, user, password)) {
-            var post = RequestBuilder
-                .post(uri)
-                .setHeader("Content-Type", "application/zip")
-                .setEntity(new FileEntity(zippedBag)).build();
-            var response = httpClient.execute(addXAuthorizationToRequest(post));
-            var responseText = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
-            System.out.println(responseText);
+        try (SwordTransport transport = createTransport(uri, user, password, 1);
+            SwordResponse response = await(transport.post(uri, zippedBag, "application/zip", null))) {
+            System.out.println(response.readBodyAsString());
         }
     }
 
+    /**
+     * Prints an XML document to <code>System.out</code>, see {@link #printXml(String, String, PrintStream)}.
+     *
+     * @param xml the XML document
+     */
     public static void printXml(String xml) {
-        System.out.println("-- XML: START -------");
-        System.out.println(prettyPrintByTransformer(xml, 2, false));
-        System.out.println("-- XML: END ---------");
-        System.out.println();
+        printXml(null, xml, System.out);
     }
 
-    // From: https://www.baeldung.com/java-pretty-print-xml
-    private static String prettyPrintByTransformer(String xmlString, int indent, boolean ignoreDeclaration) {
-
-        try {
-            InputSource src = new InputSource(new StringReader(xmlString));
-            org.w3c.dom.Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(src);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            transformerFactory.setAttribute("indent-number", indent);
-            Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, ignoreDeclaration ? "yes" : "no");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-
-            Writer out = new StringWriter();
-            transformer.transform(new DOMSource(document), new StreamResult(out));
-            return out.toString();
+    /**
+     * Prints an XML document between START and END banners, as selected by {@link #XML_OUTPUT_PROPERTY}. The document is formatted into a buffer first and
+     * printed in one go, so that documents printed by concurrent deposits do not get mixed up. A body that is not well-formed XML, such as an HTML error page,
+     * is printed as received. If the output is off, the lead-in is not printed either.
+     *
+     * @param leadIn a line to print before the document, e.g. "Complete statement follows:", or <code>null</code> for none
+     * @param xml    the XML document
+     * @param ps     the stream to print to
+     */
+    public static void printXml(String leadIn, String xml, PrintStream ps) {
+        String xmlOutput = System.getProperty(XML_OUTPUT_PROPERTY, "pretty");
+        if ("off".equals(xmlOutput)) {
+            return;
         }
-        catch (Exception e) {
-            throw new RuntimeException("Error occurs when pretty-printing xml:\n" + xmlString, e);
+        String text = xml + System.lineSeparator();
+        if (!"raw".equals(xmlOutput)) {
+            try {
+                StringWriter out = new StringWriter();
+                XmlPrettyPrinter.prettyPrint(new StringReader(xml), out, 2);
+                text = out.toString();
+            }
+            catch (XMLStreamException e) {
+                // Not XML after all; fall back to printing it as received
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        synchronized (ps) {
+            if (leadIn != null) {
+                ps.println(leadIn);
+            }
+            ps.println("-- XML: START -------");
+            ps.print(text);
+            ps.println("-- XML: END ---------");
+            ps.println();
         }
     }
 
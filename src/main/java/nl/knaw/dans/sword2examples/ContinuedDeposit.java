@@ -18,8 +18,6 @@ package nl.knaw.dans.sword2examples;
 import org.apache.abdera.i18n.iri.IRI;
 import org.apache.abdera.model.Entry;
 import org.apache.abdera.model.Link;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.impl.client.CloseableHttpClient;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -41,65 +39,120 @@ public class ContinuedDeposit {
         final int chunkSize = Integer.parseInt(args[3]);
         final String bag = args[4];
 
-        File bagDirInTarget = Common.copyToBagDirectoryInTarget(new File(bag));
-        depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
+        try {
+            File bagDirInTarget = Common.copyToBagDirectoryInTarget(new File(bag));
+            depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
+        }
+        catch (DepositException e) {
+            System.exit(e.getExitCode());
+        }
     }
 
     public static URI depositPackage(File bagDir, IRI colIri, String uid, String pw, int chunkSize) throws Exception {
+        try (SwordTransport transport = Common.createTransport(colIri.toURI(), uid, pw, 1)) {
+            return depositPackage(bagDir, colIri, chunkSize, transport);
+        }
+    }
+
+    /**
+     * Sends a bag in chunks and tracks its status until it is published, using an existing transport.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param chunkSize the size of each chunk in bytes
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @return the URI of the published bag
+     * @throws DepositException if the deposit fails
+     */
+    public static URI depositPackage(File bagDir, IRI colIri, int chunkSize, SwordTransport transport) throws Exception {
+        URI statUri = sendPackage(bagDir, colIri, chunkSize, transport);
+
+        // 5. Check statement every ten seconds (a bit too frantic, but okay for this test). If status changes:
+        // report new status. If status is an error (INVALID, REJECTED, FAILED) or PUBLISHED: exit.
+        return Common.trackDeposit(transport, statUri);
+    }
+
+    /**
+     * Zips and sends a bag in chunks without waiting for it to be processed.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param chunkSize the size of each chunk in bytes
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @return the Stat-IRI from which the status of the deposit can be retrieved
+     * @throws DepositException if the server does not accept one of the chunks
+     */
+    public static URI sendPackage(File bagDir, IRI colIri, int chunkSize, SwordTransport transport) throws Exception {
+        return sendPackage(bagDir, colIri, chunkSize, transport, null);
+    }
+
+    /**
+     * Zips and sends a bag in chunks without waiting for it to be processed.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param chunkSize the size of each chunk in bytes
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @param label     a label, e.g. the bag name, to start every line of output with, or <code>null</code> for none
+     * @return the Stat-IRI from which the status of the deposit can be retrieved
+     * @throws DepositException if the server does not accept one of the chunks
+     */
+    public static URI sendPackage(File bagDir, IRI colIri, int chunkSize, SwordTransport transport, String label) throws Exception {
+        String prefix = Common.labelPrefix(label);
         File zipFile = new File(bagDir.getAbsolutePath() + ".zip");
         zipFile.delete();
         Common.zipDirectory(bagDir, zipFile);
 
         // 1. Set up stream for calculating MD5
-        FileInputStream fis = new FileInputStream(zipFile);
         MessageDigest md = MessageDigest.getInstance("MD5");
-        DigestInputStream dis = new DigestInputStream(fis, md);
-
-        // 2. Post first chunk bag to Col-IRI
-        CloseableHttpClient http = Common.createHttpClient(colIri.toURI(), uid, pw);
-        CloseableHttpResponse response = Common.sendChunk(dis, chunkSize, "POST", colIri.toURI(), "bag.zip.1", "application/octet-stream", http,
-            chunkSize < zipFile.length());
-
-        // 3. Check the response. If transfer corrupt (MD5 doesn't check out), report and exit.
-        String bodyText = Common.readEntityAsString(response.getEntity());
-        if (response.getStatusLine().getStatusCode() != 201) {
-            System.err.println("FAILED. Status = " + response.getStatusLine());
-            System.err.println("Response body follows:");
-            Common.printXml(bodyText);
-            System.exit(2);
-        }
-        System.out.println("SUCCESS. Deposit receipt follows:");
-        Common.printXml(bodyText);
-
-        Entry receipt = Common.parse(bodyText);
-        Link seIriLink = receipt.getLink("edit");
-        URI seIri = seIriLink.getHref().toURI();
-
-        long remaining = zipFile.length() - chunkSize;
-        int count = 2;
-        while (remaining > 0) {
-            System.out.printf("POST-ing chunk of %d bytes to SE-IRI (remaining: %d) ... ", chunkSize, remaining);
-            response = Common.sendChunk(dis, chunkSize, "POST", seIri, "bag.zip." + count++, "application/octet-stream", http, remaining > chunkSize);
-            remaining -= chunkSize;
-            bodyText = Common.readEntityAsString(response.getEntity());
-            if (response.getStatusLine().getStatusCode() != 200) {
-                System.err.println("FAILED. Status = " + response.getStatusLine());
-                System.err.println("Response body follows:");
-                System.err.println(bodyText);
-                System.exit(2);
+        try (FileInputStream fis = new FileInputStream(zipFile);
+            DigestInputStream dis = new DigestInputStream(fis, md)) {
+
+            // 2. Post first chunk bag to Col-IRI
+            String bodyText;
+            try (SwordResponse response = Common.sendChunk(dis, chunkSize, "POST", colIri.toURI(), "bag.zip.1", "application/octet-stream", transport,
+                chunkSize < zipFile.length())) {
+
+                // 3. Check the response. If transfer corrupt (MD5 doesn't check out), report and exit.
+                bodyText = response.readBodyAsString();
+                if (response.getStatusCode() != 201) {
+                    System.err.println(prefix + "FAILED. Status = " + response.getStatusLine());
+                    Common.printXml(prefix + "Response body follows:", bodyText, System.err);
+                    throw new DepositException("Status = " + response.getStatusLine(), 2);
+                }
             }
-            System.out.println("SUCCESS.");
-        }
+            System.out.println(prefix + "SUCCESS.");
+            Common.printXml(prefix + "Deposit receipt follows:", bodyText, System.out);
 
-        // 4. Get the statement URL. This is the URL from which to retrieve the current status of the deposit.
-        System.out.println("Retrieving Statement IRI (Stat-IRI) from deposit receipt ...");
-        receipt = Common.parse(bodyText);
-        Link statIriLink = receipt.getLink("http://purl.org/net/sword/terms/statement");
-        IRI statIri = statIriLink.getHref();
-        System.out.println("Stat-IRI = " + statIri);
+            Entry receipt = Common.parse(bodyText);
+            Link seIriLink = receipt.getLink("edit");
+            URI seIri = seIriLink.getHref().toURI();
 
-        // 5. Check statement every ten seconds (a bit too frantic, but okay for this test). If status changes:
-        // report new status. If status is an error (INVALID, REJECTED, FAILED) or PUBLISHED: exit.
-        return Common.trackDeposit(http, statIri.toURI());
+            long remaining = zipFile.length() - chunkSize;
+            int count = 2;
+            while (remaining > 0) {
+                // Printed as one line once the chunk is sent, so that it is not split up by the output of other deposits
+                String chunkLine = String.format("%sPOST-ing chunk of %d bytes to SE-IRI (remaining: %d) ... ", prefix, chunkSize, remaining);
+                try (SwordResponse response = Common.sendChunk(dis, chunkSize, "POST", seIri, "bag.zip." + count++, "application/octet-stream", transport,
+                    remaining > chunkSize)) {
+                    remaining -= chunkSize;
+                    bodyText = response.readBodyAsString();
+                    if (response.getStatusCode() != 200) {
+                        System.err.println(chunkLine + "FAILED. Status = " + response.getStatusLine());
+                        Common.printXml(prefix + "Response body follows:", bodyText, System.err);
+                        throw new DepositException("Status = " + response.getStatusLine(), 2);
+                    }
+                }
+                System.out.println(chunkLine + "SUCCESS.");
+            }
+
+            // 4. Get the statement URL. This is the URL from which to retrieve the current status of the deposit.
+            System.out.println(prefix + "Retrieving Statement IRI (Stat-IRI) from deposit receipt ...");
+            receipt = Common.parse(bodyText);
+            Link statIriLink = receipt.getLink("http://purl.org/net/sword/terms/statement");
+            IRI statIri = statIriLink.getHref();
+            System.out.println(prefix + "Stat-IRI = " + statIri);
+            return statIri.toURI();
+        }
     }
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import org.apache.abdera.i18n.iri.IRI;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches an inbox directory and deposits every bag that arrives in it, using one JVM and one transport for all deposits. Bags that are published are moved
+ * to the outbox directory, the others to the failed directory. The queue and the Stat-IRIs of the deposits in progress are kept in a state file, so that after a
+ * restart queued bags are still sent and bags that were already sent are tracked instead of sent again.
+ * <p>
+ * Sending and tracking are done separately: the workers only upload bags, after which one poller checks the statements of all submitted deposits every ten
+ * seconds. A worker is therefore free for the next bag as soon as the upload is finished, however long the ingest of the previous one takes. If sending or
+ * polling fails with an I/O error, e.g. because the server cannot be reached, it is retried ten seconds later; any other error moves the bag to the failed
+ * directory. If the JVM supports virtual threads (Java 21 or later), the workers are virtual threads and the statements are polled concurrently, each on a
+ * virtual thread of its own; otherwise they are polled one after the other.
+ * <p>
+ * Bags (directories or zip files) must be moved into the inbox rather than copied, so that they are complete when they appear. Names starting with a dot are
+ * ignored, so a bag can also be copied to a hidden name first and then renamed.
+ */
+public class DepositDaemon {
+    private static final String STATE_FILE_NAME = "deposit-state.properties";
+    private static final String QUEUED = "QUEUED";
+    private static final String SUBMITTED = "SUBMITTED ";
+    private static final long POLL_INTERVAL_SECONDS = 10;
+
+    private final IRI colIri;
+    private final int chunkSize;
+    private final SwordTransport transport;
+    private final File inbox;
+    private final File outbox;
+    private final File failed;
+    private final File work;
+    private final File stateFile;
+    private final Properties state = new Properties();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
+    // Runs the checks of one round of polling concurrently, or null to run them on the poller itself
+    private final ExecutorService checkExecutor;
+
+    /**
+     * @param args 0. collection URL (Col-IRI), 1. user name, 2. password, 3. base directory, 4. number of bags sent concurrently, 5. (optional) chunk size;
+     *             if given, bags are sent as continued deposits
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5 && args.length != 6) {
+            System.err.printf("Usage: java %s <Col-IRI> <uid> <passwd> <base dir> <workers> [<chunk size>]", DepositDaemon.class.getName());
+            System.exit(1);
+        }
+
+        // Read command line arguments
+        final IRI colIri = new IRI(args[0]);
+        final String uid = args[1];
+        final String pw = args[2];
+        final File baseDir = new File(args[3]);
+        final int workers = Integer.parseInt(args[4]);
+        final int chunkSize = args.length == 6 ? Integer.parseInt(args[5]) : 0;
+
+        // One connection more than there are workers, so that the poller never has to wait for a worker to finish an upload
+        try (SwordTransport transport = Common.createTransport(colIri.toURI(), uid, pw, workers + 1)) {
+            new DepositDaemon(colIri, chunkSize, transport, baseDir, workers).run();
+        }
+    }
+
+    public DepositDaemon(IRI colIri, int chunkSize, SwordTransport transport, File baseDir, int workers) {
+        this.colIri = colIri;
+        this.chunkSize = chunkSize;
+        this.transport = transport;
+        this.inbox = new File(baseDir, "inbox");
+        this.outbox = new File(baseDir, "outbox");
+        this.failed = new File(baseDir, "failed");
+        this.work = new File(baseDir, "work");
+        this.stateFile = new File(baseDir, STATE_FILE_NAME);
+        ThreadFactory virtualThreads = JavaHttpTransport.newVirtualThreadFactory();
+        this.executor = virtualThreads == null ? Executors.newFixedThreadPool(workers) : Executors.newFixedThreadPool(workers, virtualThreads);
+        this.checkExecutor = JavaHttpTransport.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Resumes the deposits from the state file, queues the bags already in the inbox and then processes new arrivals until the JVM is stopped.
+     */
+    public void run() throws Exception {
+        FileUtils.forceMkdir(inbox);
+        FileUtils.forceMkdir(outbox);
+        FileUtils.forceMkdir(failed);
+        FileUtils.forceMkdir(work);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            // Register before scanning, so that no bag can arrive unnoticed in between
+            inbox.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            resume();
+            scanInbox();
+            poller.scheduleWithFixedDelay(this::pollSubmitted, POLL_INTERVAL_SECONDS, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            System.out.printf("Watching %s for new bags ...%n", inbox);
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scanInbox();
+                    }
+                    else {
+                        enqueue(((Path) event.context()).toString());
+                    }
+                }
+                key.reset();
+            }
+        }
+    }
+
+    private void resume() throws Exception {
+        if (stateFile.exists()) {
+            try (InputStream is = new FileInputStream(stateFile)) {
+                state.load(is);
+            }
+        }
+        List<String> names = new ArrayList<>(state.stringPropertyNames());
+        Collections.sort(names);
+        for (String name : names) {
+            String value = state.getProperty(name);
+            if (!new File(inbox, name).exists()) {
+                System.err.printf("WARNING: %s is no longer in the inbox; forgetting it%n", name);
+                state.remove(name);
+            }
+            else if (value.startsWith(SUBMITTED)) {
+                // Picked up by the poller
+                System.out.printf("Resuming tracking of %s at %s%n", name, value.substring(SUBMITTED.length()));
+            }
+            else {
+                System.out.printf("Resuming queued bag %s%n", name);
+                executor.submit(() -> send(name));
+            }
+        }
+        saveState();
+    }
+
+    private void scanInbox() throws Exception {
+        String[] names = inbox.list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                enqueue(name);
+            }
+        }
+    }
+
+    private synchronized void enqueue(String name) throws Exception {
+        File bag = new File(inbox, name);
+        if (name.startsWith(".") || state.containsKey(name) || !(bag.isDirectory() || name.endsWith(".zip"))) {
+            return;
+        }
+        System.out.printf("Queueing %s%n", name);
+        state.setProperty(name, QUEUED);
+        saveState();
+        executor.submit(() -> send(name));
+    }
+
+    private void send(String name) {
+        File bag = new File(inbox, name);
+        File stagingDir = new File(work, name);
+        try {
+            File bagDir = Common.copyToBagDirectory(bag, stagingDir);
+            System.out.printf("Sending %s ...%n", name);
+            URI statUri = chunkSize > 0
+                ? ContinuedDeposit.sendPackage(bagDir, colIri, chunkSize, transport, name)
+                : SimpleDeposit.sendPackage(bagDir, colIri, transport, name);
+            updateState(name, SUBMITTED + statUri);
+        }
+        catch (Exception e) {
+            if (executor.isShutdown() || poller.isShutdown()) {
+                // Probably caused by the interrupt; the state file still has this bag, so it is sent again after a restart
+                return;
+            }
+            if (e instanceof IOException) {
+                // E.g. a network error; the bag stays QUEUED and is sent again later
+                System.err.printf("WARNING: could not send %s (%s); retrying in %d seconds%n", name, e.getMessage(), POLL_INTERVAL_SECONDS);
+                poller.schedule(() -> executor.submit(() -> send(name)), POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+            else {
+                fail(name, e);
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(stagingDir);
+        }
+    }
+
+    /**
+     * Checks the statement of every submitted deposit once. Runs on the poller; it must not throw, as that would stop the polling.
+     */
+    private void pollSubmitted() {
+        Map<String, URI> submitted = new TreeMap<>();
+        synchronized (this) {
+            for (String name : state.stringPropertyNames()) {
+                String value = state.getProperty(name);
+                if (value.startsWith(SUBMITTED)) {
+                    submitted.put(name, URI.create(value.substring(SUBMITTED.length())));
+                }
+            }
+        }
+        List<Future<?>> checks = new ArrayList<>();
+        for (Map.Entry<String, URI> deposit : submitted.entrySet()) {
+            if (checkExecutor == null) {
+                check(deposit.getKey(), deposit.getValue());
+            }
+            else {
+                checks.add(checkExecutor.submit(() -> check(deposit.getKey(), deposit.getValue())));
+            }
+        }
+        // Finish this round before the next one is scheduled, so that a deposit is never checked twice at the same time
+        for (Future<?> check : checks) {
+            try {
+                check.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException e) {
+                System.err.printf("ERROR: polling failed: %s%n", e.getCause().getMessage());
+            }
+        }
+    }
+
+    private void check(String name, URI statUri) {
+        try {
+            if (Common.checkDeposit(transport, statUri, name) != null) {
+                System.out.printf("%s published; moving it to %s%n", name, outbox);
+                finish(name, outbox);
+            }
+        }
+        catch (IOException e) {
+            if (poller.isShutdown()) {
+                return;
+            }
+            // E.g. a network error; the deposit itself may still be fine, so try again next time
+            System.err.printf("WARNING: could not check the status of %s (%s); retrying in %d seconds%n", name, e.getMessage(), POLL_INTERVAL_SECONDS);
+        }
+        catch (Exception e) {
+            if (poller.isShutdown()) {
+                return;
+            }
+            fail(name, e);
+        }
+    }
+
+    private void fail(String name, Exception e) {
+        System.err.printf("ERROR: deposit of %s failed (%s); moving it to %s%n", name, e.getMessage(), failed);
+        try {
+            finish(name, failed);
+        }
+        catch (Exception e2) {
+            System.err.printf("ERROR: could not move %s to %s: %s%n", name, failed, e2.getMessage());
+        }
+    }
+
+    private synchronized void updateState(String name, String value) throws Exception {
+        state.setProperty(name, value);
+        saveState();
+    }
+
+    private synchronized void finish(String name, File destinationDir) throws Exception {
+        File destination = new File(destinationDir, name);
+        if (destination.exists()) {
+            destination = new File(destinationDir, name + "-" + System.currentTimeMillis());
+        }
+        Files.move(new File(inbox, name).toPath(), destination.toPath());
+        state.remove(name);
+        saveState();
+    }
+
+    private synchronized void saveState() throws Exception {
+        // Write to a temporary file first, so that a crash cannot leave a truncated state file behind
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            state.store(os, "Deposits queued or in progress: <bag name>=QUEUED or SUBMITTED <Stat-IRI>");
+        }
+        Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void shutdown() {
+        poller.shutdownNow();
+        if (checkExecutor != null) {
+            checkExecutor.shutdownNow();
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link SwordTransport} on top of <code>java.net.http.HttpClient</code>. Requests are sent asynchronously, using HTTP/2 where the server supports it. Files are
+ * streamed from disk by the client itself, so no thread is blocked while a deposit is being uploaded.
+ * <p>
+ * Basic authentication is sent with every request to the host (and port, if given) of the URI the transport was created for, rather than only after a challenge
+ * as Apache HttpClient does. This saves a round trip per request, which adds up when polling many statements.
+ * <p>
+ * Like Apache HttpClient, the transport follows redirects for GET requests only, so that a deposit is never silently turned into a GET. The client's own
+ * redirect handling is not used, because it copies all headers, including the credentials, to the redirected request, whatever its host.
+ */
+public class JavaHttpTransport implements SwordTransport {
+    // The default of Apache HttpClient
+    private static final int MAX_REDIRECTS = 50;
+
+    private final HttpClient http;
+    private final URI authUri;
+    private final String authorization;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a transport that runs its tasks on virtual threads if the JVM supports them (Java 21 or later) and on the default executor of the HTTP client
+     * otherwise.
+     *
+     * @param uri the URI of the server, used to scope the credentials
+     * @param uid the user name
+     * @param pw  the password
+     */
+    public JavaHttpTransport(URI uri, String uid, String pw) {
+        this(uri, uid, pw, newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @param uri      the URI of the server, used to scope the credentials
+     * @param uid      the user name
+     * @param pw       the password
+     * @param executor the executor for the tasks of the HTTP client, or <code>null</code> for its default executor; it is shut down when the transport is
+     *                 closed
+     */
+    public JavaHttpTransport(URI uri, String uid, String pw, ExecutorService executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        this.http = builder.build();
+        this.authUri = uri;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString((uid + ":" + pw).getBytes(StandardCharsets.UTF_8));
+        this.executor = executor;
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread for each task, or <code>null</code> if the JVM does not support virtual threads. Reflection is used,
+     * so that this project can still be built for Java 11.
+     *
+     * @return the executor or <code>null</code>
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a factory for virtual threads, or <code>null</code> if the JVM does not support virtual threads. Reflection is used, so that this project can
+     * still be built for Java 11.
+     *
+     * @return the factory or <code>null</code>
+     */
+    public static ThreadFactory newVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, byte[] chunk) {
+        return send(method, uri, filename, mimeType, md5, inProgress, HttpRequest.BodyPublishers.ofByteArray(chunk));
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, File file) {
+        try {
+            return send(method, uri, filename, mimeType, md5, inProgress, HttpRequest.BodyPublishers.ofFile(file.toPath()));
+        }
+        catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress,
+        HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = newRequest(uri)
+            /*
+             * When using an HTTPS-connection EXPECT-CONTINUE must be enabled, otherwise buffer overflow may follow. Unlike Apache HttpClient, this client
+             * waits for the 100 (Continue) response indefinitely, so it is not enabled for plain HTTP servers that may not support it.
+             */
+            .expectContinue("https".equalsIgnoreCase(uri.getScheme()))
+            .header("Content-Type", mimeType)
+            .method(method, body);
+        Common.depositHeaders(filename, md5, inProgress).forEach(builder::header);
+        return execute(builder);
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> get(URI uri) {
+        return get(uri, 0);
+    }
+
+    private CompletableFuture<SwordResponse> get(URI uri, int redirects) {
+        return sendAsync(newRequest(uri).GET()).thenCompose(response -> {
+            Optional<String> location = response.headers().firstValue("Location");
+            if (!isRedirect(response.statusCode()) || location.isEmpty() || redirects >= MAX_REDIRECTS) {
+                return CompletableFuture.completedFuture(toSwordResponse(response));
+            }
+            try {
+                response.body().close();
+            }
+            catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            // A new request, so that the credentials are only sent if the new location is on the same host
+            return get(uri.resolve(location.get()), redirects + 1);
+        });
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == 301 || statusCode == 302 || statusCode == 303 || statusCode == 307 || statusCode == 308;
+    }
+
+    @Override
+    public CompletableFuture<SwordResponse> post(URI uri, File file, String contentType, String accept) {
+        try {
+            HttpRequest.Builder builder = newRequest(uri)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofFile(file.toPath()));
+            if (accept != null) {
+                builder.header("Accept", accept);
+            }
+            return execute(builder);
+        }
+        catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private HttpRequest.Builder newRequest(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (uri.getHost().equals(authUri.getHost()) && (authUri.getPort() == -1 || authUri.getPort() == uri.getPort())) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+
+    private CompletableFuture<SwordResponse> execute(HttpRequest.Builder builder) {
+        return sendAsync(builder).thenApply(JavaHttpTransport::toSwordResponse);
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> sendAsync(HttpRequest.Builder builder) {
+        try {
+            String xAuthorization = Common.readXAuthorization();
+            if (xAuthorization != null) {
+                builder.header("X-Authorization", xAuthorization);
+            }
+        }
+        catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return http.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static SwordResponse toSwordResponse(HttpResponse<InputStream> response) {
+        // HttpResponse has neither the reason phrase nor a way to tell HTTP/1.0 from HTTP/1.1, so the status code is all there is to report
+        return new SwordResponse(response.statusCode(), Integer.toString(response.statusCode()), response.body(), null);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -38,16 +38,21 @@ public class SequenceContinuedDeposit {
         final String[] bagNames = new String[args.length - 4];
         System.arraycopy(args, 4, bagNames, 0, bagNames.length);
 
-        System.out.println("Sending base revision of dataset ...");
-        File baseBagDir = new File(bagNames[0]);
-        File bagDirInTarget = Common.copyToBagDirectoryInTarget(baseBagDir);
-        URI baseUri = ContinuedDeposit.depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
-
-        for (int i = 1; i < bagNames.length; ++i) {
-            File bagDir = new File(bagNames[i]);
-            bagDirInTarget = Common.copyToBagDirectoryInTarget(bagDir);
-            Common.setBagIsVersionOf(bagDirInTarget, baseUri);
-            ContinuedDeposit.depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
+        try {
+            System.out.println("Sending base revision of dataset ...");
+            File baseBagDir = new File(bagNames[0]);
+            File bagDirInTarget = Common.copyToBagDirectoryInTarget(baseBagDir);
+            URI baseUri = ContinuedDeposit.depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
+
+            for (int i = 1; i < bagNames.length; ++i) {
+                File bagDir = new File(bagNames[i]);
+                bagDirInTarget = Common.copyToBagDirectoryInTarget(bagDir);
+                Common.setBagIsVersionOf(bagDirInTarget, baseUri);
+                ContinuedDeposit.depositPackage(bagDirInTarget, colIri, uid, pw, chunkSize);
+            }
+        }
+        catch (DepositException e) {
+            System.exit(e.getExitCode());
         }
     }
 }
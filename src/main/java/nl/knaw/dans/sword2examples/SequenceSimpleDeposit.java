@@ -36,16 +36,21 @@ public class SequenceSimpleDeposit {
         final String[] bagNames = new String[args.length - 3];
         System.arraycopy(args, 3, bagNames, 0, bagNames.length);
 
-        System.out.println("Sending base revision of dataset ...");
-        File baseBagDir = new File(bagNames[0]);
-        File bagDirInTarget = Common.copyToBagDirectoryInTarget(baseBagDir);
-        URI baseUri = SimpleDeposit.depositPackage(bagDirInTarget, colIri, uid, pw);
-
-        for (int i = 1; i < bagNames.length; ++i) {
-            File bagDir = new File(bagNames[i]);
-            bagDirInTarget = Common.copyToBagDirectoryInTarget(bagDir);
-            Common.setBagIsVersionOf(bagDirInTarget, baseUri);
-            SimpleDeposit.depositPackage(bagDirInTarget, colIri, uid, pw);
+        try {
+            System.out.println("Sending base revision of dataset ...");
+            File baseBagDir = new File(bagNames[0]);
+            File bagDirInTarget = Common.copyToBagDirectoryInTarget(baseBagDir);
+            URI baseUri = SimpleDeposit.depositPackage(bagDirInTarget, colIri, uid, pw);
+
+            for (int i = 1; i < bagNames.length; ++i) {
+                File bagDir = new File(bagNames[i]);
+                bagDirInTarget = Common.copyToBagDirectoryInTarget(bagDir);
+                Common.setBagIsVersionOf(bagDirInTarget, baseUri);
+                SimpleDeposit.depositPackage(bagDirInTarget, colIri, uid, pw);
+            }
+        }
+        catch (DepositException e) {
+            System.exit(e.getExitCode());
         }
     }
 }
@@ -18,15 +18,9 @@ package nl.knaw.dans.sword2examples;
 import org.apache.abdera.i18n.iri.IRI;
 import org.apache.abdera.model.Entry;
 import org.apache.abdera.model.Link;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.impl.client.CloseableHttpClient;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.net.URI;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 
 public class SimpleDeposit {
 
@@ -47,47 +41,89 @@ public class SimpleDeposit {
         final String pw = args[2];
         final String bagFile = args[3];
 
-        File bagDirInTarget = Common.copyToBagDirectoryInTarget(new File(bagFile));
-        depositPackage(bagDirInTarget, colIri, uid, pw);
+        try {
+            File bagDirInTarget = Common.copyToBagDirectoryInTarget(new File(bagFile));
+            depositPackage(bagDirInTarget, colIri, uid, pw);
+        }
+        catch (DepositException e) {
+            System.exit(e.getExitCode());
+        }
     }
 
     public static URI depositPackage(File bagDir, IRI colIri, String uid, String pw) throws Exception {
+        try (SwordTransport transport = Common.createTransport(colIri.toURI(), uid, pw, 1)) {
+            return depositPackage(bagDir, colIri, transport);
+        }
+    }
+
+    /**
+     * Sends a bag and tracks its status until it is published, using an existing transport.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @return the URI of the published bag
+     * @throws DepositException if the deposit fails
+     */
+    public static URI depositPackage(File bagDir, IRI colIri, SwordTransport transport) throws Exception {
+        URI statUri = sendPackage(bagDir, colIri, transport);
+
+        // 4. Check statement every ten seconds (a bit too frantic, but okay for this test). If status changes:
+        // report new status. If status is an error (INVALID, REJECTED, FAILED) or ARCHIVED: exit.
+        return Common.trackDeposit(transport, statUri);
+    }
+
+    /**
+     * Zips and sends a bag without waiting for it to be processed.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @return the Stat-IRI from which the status of the deposit can be retrieved
+     * @throws DepositException if the server does not accept the bag
+     */
+    public static URI sendPackage(File bagDir, IRI colIri, SwordTransport transport) throws Exception {
+        return sendPackage(bagDir, colIri, transport, null);
+    }
+
+    /**
+     * Zips and sends a bag without waiting for it to be processed.
+     *
+     * @param bagDir    the bag directory to send
+     * @param colIri    the collection IRI (Col-IRI) to send the bag to
+     * @param transport the transport to use, authenticated for the Col-IRI
+     * @param label     a label, e.g. the bag name, to start every line of output with, or <code>null</code> for none
+     * @return the Stat-IRI from which the status of the deposit can be retrieved
+     * @throws DepositException if the server does not accept the bag
+     */
+    public static URI sendPackage(File bagDir, IRI colIri, SwordTransport transport, String label) throws Exception {
+        String prefix = Common.labelPrefix(label);
         // 0. Zip the bag if it isn't yet.
         File zipFile = null;
         zipFile = new File(bagDir.getAbsolutePath() + ".zip");
         zipFile.delete();
         Common.zipDirectory(bagDir, zipFile);
 
-        // 1. Set up stream for calculating MD5
-        MessageDigest md = MessageDigest.getInstance("MD5");
-        try (FileInputStream fis = new FileInputStream(zipFile);
-            DigestInputStream dis = new DigestInputStream(fis, md)) {
+        // 1. Post entire bag to Col-IRI. The MD5 is calculated before sending, so that the file can be streamed.
+        try (SwordResponse response = Common.sendFile(zipFile, "POST", colIri.toURI(), "bag.zip", "application/zip", transport, false)) {
 
-            // 2. Post entire bag to Col-IRI
-            CloseableHttpClient http = Common.createHttpClient(colIri.toURI(), uid, pw);
-            CloseableHttpResponse response = Common.sendChunk(dis, (int) zipFile.length(), "POST", colIri.toURI(), "bag.zip", "application/zip", http, false);
-
-            // 3. Check the response. If transfer corrupt (MD5 doesn't check out), report and exit.
-            String bodyText = Common.readEntityAsString(response.getEntity());
-            if (response.getStatusLine().getStatusCode() != 201) {
-                System.err.println("FAILED. Status = " + response.getStatusLine());
-                System.err.println("Response body follows:");
-                Common.printXml(bodyText);
-                System.exit(2);
+            // 2. Check the response. If transfer corrupt (MD5 doesn't check out), report and exit.
+            String bodyText = response.readBodyAsString();
+            if (response.getStatusCode() != 201) {
+                System.err.println(prefix + "FAILED. Status = " + response.getStatusLine());
+                Common.printXml(prefix + "Response body follows:", bodyText, System.err);
+                throw new DepositException("Status = " + response.getStatusLine(), 2);
             }
-            System.out.println("SUCCESS. Deposit receipt follows:");
-            Common.printXml(bodyText);
+            System.out.println(prefix + "SUCCESS.");
+            Common.printXml(prefix + "Deposit receipt follows:", bodyText, System.out);
 
-            // 4. Get the statement URL. This is the URL from which to retrieve the current status of the deposit.
-            System.out.println("Retrieving Statement IRI (Stat-IRI) from deposit receipt ...");
+            // 3. Get the statement URL. This is the URL from which to retrieve the current status of the deposit.
+            System.out.println(prefix + "Retrieving Statement IRI (Stat-IRI) from deposit receipt ...");
             Entry receipt = Common.parse(bodyText);
             Link statLink = receipt.getLink("http://purl.org/net/sword/terms/statement");
             IRI statIri = statLink.getHref();
-            System.out.println("Stat-IRI = " + statIri);
-
-            // 5. Check statement every ten seconds (a bit too frantic, but okay for this test). If status changes:
-            // report new status. If status is an error (INVALID, REJECTED, FAILED) or ARCHIVED: exit.
-            return Common.trackDeposit(http, statIri.toURI());
+            System.out.println(prefix + "Stat-IRI = " + statIri);
+            return statIri.toURI();
         }
     }
 }
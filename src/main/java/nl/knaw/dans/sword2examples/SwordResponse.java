@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The response to a request sent through a {@link SwordTransport}. The body is not read until asked for, so that it can be streamed.
+ */
+public class SwordResponse implements Closeable {
+    private final int statusCode;
+    private final String statusLine;
+    private final InputStream body;
+    private final Closeable resource;
+
+    public SwordResponse(int statusCode, String statusLine, InputStream body, Closeable resource) {
+        this.statusCode = statusCode;
+        this.statusLine = statusLine;
+        this.body = body;
+        this.resource = resource;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the status line for use in messages. Depending on the transport this is the complete status line (e.g. <code>HTTP/1.1 201 Created</code>) or
+     * just the status code.
+     *
+     * @return the status line or the status code
+     */
+    public String getStatusLine() {
+        return statusLine;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * Assumes the body is UTF-8 encoded text and reads it into a String.
+     *
+     * @return the entire body as a string
+     * @throws IOException if an I/O error occurs
+     */
+    public String readBodyAsString() throws IOException {
+        return IOUtils.toString(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        }
+        finally {
+            if (resource != null) {
+                resource.close();
+            }
+        }
+    }
+}
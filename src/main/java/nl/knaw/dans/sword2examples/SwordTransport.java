@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the HTTP requests needed by the SWORD2 examples. Implementations add the X-Authorization header (see {@link Common#readXAuthorization()}) to every
+ * request and authenticate with the credentials they were created with. All methods return immediately; the caller must close the {@link SwordResponse} once
+ * the future completes.
+ */
+public interface SwordTransport extends Closeable {
+
+    /**
+     * Sends (part of) a deposit that is held in memory, with the headers from {@link Common#depositHeaders(String, String, boolean)}.
+     *
+     * @param method     the HTTP method, POST or PUT
+     * @param uri        the Col-IRI or SE-IRI to send to
+     * @param filename   the filename for the Content-Disposition header
+     * @param mimeType   the MIME type of the chunk
+     * @param md5        the hex encoded MD5 of the chunk
+     * @param inProgress whether more chunks will follow
+     * @param chunk      the bytes to send
+     * @return the response
+     */
+    CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, byte[] chunk);
+
+    /**
+     * Sends a deposit that is stored in a file, with the headers from {@link Common#depositHeaders(String, String, boolean)}. The file is streamed, not read
+     * into memory.
+     *
+     * @param method     the HTTP method, POST or PUT
+     * @param uri        the Col-IRI or SE-IRI to send to
+     * @param filename   the filename for the Content-Disposition header
+     * @param mimeType   the MIME type of the file
+     * @param md5        the hex encoded MD5 of the file
+     * @param inProgress whether more chunks will follow
+     * @param file       the file to send
+     * @return the response
+     */
+    CompletableFuture<SwordResponse> send(String method, URI uri, String filename, String mimeType, String md5, boolean inProgress, File file);
+
+    /**
+     * Retrieves a document, e.g. the statement of a deposit.
+     *
+     * @param uri the URI to retrieve
+     * @return the response
+     */
+    CompletableFuture<SwordResponse> get(URI uri);
+
+    /**
+     * Posts a file without any SWORD2 headers, e.g. a zipped bag to the validate-dans-bag end-point.
+     *
+     * @param uri         the URI to post to
+     * @param file        the file to send
+     * @param contentType the content type of the file
+     * @param accept      the media type to request, or <code>null</code> to leave it up to the server
+     * @return the response
+     */
+    CompletableFuture<SwordResponse> post(URI uri, File file, String contentType, String accept);
+}
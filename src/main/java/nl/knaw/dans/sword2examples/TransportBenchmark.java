@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.abdera.i18n.iri.IRI;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the Apache HttpClient and java.net.http transports by running many deposits at the same time against a stub SWORD2 server in the same JVM. Each
+ * deposit takes the same path as in the example programs: the bag is zipped and streamed from disk by {@link SimpleDeposit#sendPackage(File, IRI,
+ * SwordTransport)}, after which {@link Common#trackDeposit(SwordTransport, URI, String, long)} polls its statement until the stub reports PUBLISHED. The stub
+ * checks the Authorization, X-Authorization, Content-MD5, Packaging and In-Progress headers and sleeps for a fixed time before each response, to simulate the
+ * work done by a real server. Like a real server, it answers a request without credentials with a Basic authentication challenge.
+ * <p>
+ * The deposits share one transport created by {@link Common#createTransport(URI, String, String, int)}. They run on virtual threads if the JVM supports them
+ * (Java 21 or later), as in {@link DepositDaemon}, and on a pool of one platform thread per deposit otherwise. The reported peak thread count is that of
+ * the platform threads, including those of the stub server, which uses one thread per request it is handling. The output of the deposits themselves is
+ * discarded.
+ */
+public class TransportBenchmark {
+    private static final String USER = "user";
+    private static final String PASSWORD = "password";
+
+    private final int deposits;
+    private final int polls;
+    private final int latencyMillis;
+    private final int pollIntervalMillis;
+    private final int payloadSize;
+    private final String expectedAuthorization = "Basic " + Base64.getEncoder().encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    private final String expectedXAuthorization;
+    private final Map<String, AtomicInteger> statementRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextDepositId = new AtomicInteger();
+
+    /**
+     * @param args 0. number of concurrent deposits (default 1000), 1. number of times a statement is polled before it is PUBLISHED (default 3), 2. server
+     *             latency in milliseconds (default 50), 3. payload size in bytes (default 65536), 4. poll interval in milliseconds (default 100)
+     */
+    public static void main(String[] args) throws Exception {
+        int deposits = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int polls = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int payloadSize = args.length > 3 ? Integer.parseInt(args[3]) : 65536;
+        int pollIntervalMillis = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        // By default the stub server closes all but 200 idle connections, which makes pooled clients fail on stale connections
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(deposits * 2));
+        }
+        // The output is discarded anyway, so do not spend time on pretty-printing it
+        if (System.getProperty(Common.XML_OUTPUT_PROPERTY) == null) {
+            System.setProperty(Common.XML_OUTPUT_PROPERTY, "off");
+        }
+        new TransportBenchmark(deposits, polls, latencyMillis, payloadSize, pollIntervalMillis).run();
+    }
+
+    public TransportBenchmark(int deposits, int polls, int latencyMillis, int payloadSize, int pollIntervalMillis) throws IOException {
+        this.expectedXAuthorization = Common.readXAuthorization();
+        this.deposits = deposits;
+        this.polls = polls;
+        this.latencyMillis = latencyMillis;
+        this.payloadSize = payloadSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void run() throws Exception {
+        File bagsDir = Files.createTempDirectory("transport-benchmark").toFile();
+        ExecutorService serverExecutor = Executors.newCachedThreadPool();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), deposits * 2);
+        server.createContext("/collection", this::handleDeposit);
+        server.createContext("/statement/", this::handleStatement);
+        server.setExecutor(serverExecutor);
+        server.start();
+        try {
+            List<File> bags = createBags(bagsDir);
+            IRI colIri = new IRI("http://127.0.0.1:" + server.getAddress().getPort() + "/collection");
+            System.out.printf("%d concurrent deposits of %d bytes, %d polls per deposit every %d ms, %d ms server latency%n", deposits, payloadSize, polls,
+                pollIntervalMillis, latencyMillis);
+            System.out.printf("Deposits run on %s%n", virtualThreadsAvailable() ? "virtual threads" : "a pool of " + deposits + " platform threads");
+            measure("apache", bags, colIri);
+            measure("java", bags, colIri);
+        }
+        finally {
+            server.stop(0);
+            serverExecutor.shutdown();
+            FileUtils.deleteQuietly(bagsDir);
+        }
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates one bag directory per deposit, as {@link SimpleDeposit#sendPackage(File, IRI, SwordTransport)} zips the bag next to its directory.
+     */
+    private List<File> createBags(File bagsDir) throws IOException {
+        byte[] payload = new byte[payloadSize];
+        new Random(0).nextBytes(payload);
+        List<File> bags = new ArrayList<>();
+        for (int i = 0; i < deposits; ++i) {
+            File bagDir = new File(bagsDir, String.format("bag%05d", i));
+            FileUtils.writeStringToFile(new File(bagDir, "bagit.txt"), "BagIt-Version: 0.97\nTag-File-Character-Encoding: UTF-8\n", StandardCharsets.UTF_8);
+            FileUtils.writeByteArrayToFile(new File(bagDir, "data/payload.bin"), payload);
+            bags.add(bagDir);
+        }
+        return bags;
+    }
+
+    private void measure(String transportName, List<File> bags, IRI colIri) throws Exception {
+        System.setProperty(Common.TRANSPORT_PROPERTY, transportName);
+        PrintStream console = System.out;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ExecutorService executor = JavaHttpTransport.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(deposits);
+        }
+        List<Long> latencies;
+        long elapsed;
+        try (SwordTransport transport = Common.createTransport(colIri.toURI(), USER, PASSWORD, deposits)) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            // Warm up, so that class loading and JIT compilation are not measured
+            runDeposits(executor, transport, bags.subList(0, Math.min(deposits, 50)), colIri);
+
+            threads.resetPeakThreadCount();
+            long start = System.nanoTime();
+            latencies = runDeposits(executor, transport, bags, colIri);
+            elapsed = System.nanoTime() - start;
+        }
+        finally {
+            System.setOut(console);
+            executor.shutdown();
+        }
+
+        Collections.sort(latencies);
+        System.out.printf("%-6s: %d/%d published in %d ms (%.1f deposits/s); latency p50 %d ms, p95 %d ms, p99 %d ms; peak threads %d%n",
+            transportName, latencies.size(), deposits, TimeUnit.NANOSECONDS.toMillis(elapsed), latencies.size() / (elapsed / 1e9),
+            percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99), threads.getPeakThreadCount());
+    }
+
+    private List<Long> runDeposits(ExecutorService executor, SwordTransport transport, List<File> bags, IRI colIri) throws InterruptedException {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (File bagDir : bags) {
+            futures.add(executor.submit(() -> deposit(transport, bagDir, colIri)));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            try {
+                latencies.add(future.get());
+            }
+            catch (ExecutionException e) {
+                System.err.println("Deposit failed: " + e.getCause().getMessage());
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Deposits one bag and waits until it is published.
+     *
+     * @return the time the deposit took in milliseconds
+     */
+    private long deposit(SwordTransport transport, File bagDir, IRI colIri) throws Exception {
+        long start = System.nanoTime();
+        URI statUri = SimpleDeposit.sendPackage(bagDir, colIri, transport, bagDir.getName());
+        Common.trackDeposit(transport, statUri, bagDir.getName(), pollIntervalMillis);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private void handleDeposit(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (!isAuthorized(exchange)) {
+            return;
+        }
+        simulateWork();
+        var headers = exchange.getRequestHeaders();
+        if (!DigestUtils.md5Hex(body).equals(headers.getFirst("Content-MD5"))) {
+            respond(exchange, 412, "Content-MD5 does not match");
+        }
+        else if (!Common.BAGIT_URI.equals(headers.getFirst("Packaging")) || !"false".equals(headers.getFirst("In-Progress"))) {
+            respond(exchange, 400, "Missing or unexpected Packaging or In-Progress header");
+        }
+        else {
+            String statIri = "http://127.0.0.1:" + exchange.getLocalAddress().getPort() + "/statement/" + nextDepositId.incrementAndGet();
+            respond(exchange, 201, "<entry xmlns=\"http://www.w3.org/2005/Atom\"><link href=\"" + statIri
+                + "\" rel=\"http://purl.org/net/sword/terms/statement\" /></entry>");
+        }
+    }
+
+    private void handleStatement(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        if (!isAuthorized(exchange)) {
+            return;
+        }
+        simulateWork();
+        int count = statementRequests.computeIfAbsent(exchange.getRequestURI().getPath(), p -> new AtomicInteger()).incrementAndGet();
+        String state = count > polls ? "PUBLISHED" : "SUBMITTED";
+        respond(exchange, 200, "<feed xmlns=\"http://www.w3.org/2005/Atom\"><category scheme=\"http://purl.org/net/sword/terms/state\" term=\"" + state
+            + "\" /><entry><id>urn:uuid:" + UUID.nameUUIDFromBytes(exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8)) + "</id></entry></feed>");
+    }
+
+    /**
+     * Checks the credentials and responds with a challenge (401) or 403 if they are missing or wrong.
+     *
+     * @return whether the request may be handled
+     */
+    private boolean isAuthorized(HttpExchange exchange) throws IOException {
+        var headers = exchange.getRequestHeaders();
+        String authorization = headers.getFirst("Authorization");
+        if (authorization == null) {
+            exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"SWORD2\"");
+            respond(exchange, 401, "Authentication required");
+            return false;
+        }
+        if (!expectedAuthorization.equals(authorization) || !Objects.equals(expectedXAuthorization, headers.getFirst("X-Authorization"))) {
+            respond(exchange, 403, "Wrong Authorization or X-Authorization header");
+            return false;
+        }
+        return true;
+    }
+
+    private void simulateWork() {
+        try {
+            Thread.sleep(latencyMillis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+}
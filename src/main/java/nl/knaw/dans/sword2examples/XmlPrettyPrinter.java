@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.sword2examples;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * Indents XML while it is being read, writing each event straight to the output instead of building a DOM first. Elements that contain only text are kept on
+ * one line, empty elements are written as <code>&lt;name/&gt;</code> and whitespace between elements is replaced by the indentation.
+ * <p>
+ * The StAX factories are not guaranteed to be thread-safe, so each thread gets its own, created the first time that thread prints.
+ */
+public class XmlPrettyPrinter {
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+    private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORY = ThreadLocal.withInitial(XMLOutputFactory::newFactory);
+
+    /**
+     * Writes the XML read from <code>in</code> to <code>out</code>, indented. Neither <code>in</code> nor <code>out</code> is closed, but <code>out</code> is
+     * flushed.
+     *
+     * @param in     the XML to print
+     * @param out    the writer to print to
+     * @param indent the number of spaces per level
+     * @throws XMLStreamException if the XML is not well-formed
+     * @throws IOException         if the output cannot be written
+     */
+    public static void prettyPrint(Reader in, Writer out, int indent) throws XMLStreamException, IOException {
+        XMLEventReader reader = INPUT_FACTORY.get().createXMLEventReader(in);
+        XMLStreamWriter writer = OUTPUT_FACTORY.get().createXMLStreamWriter(out);
+        try {
+            int depth = 0;
+            // Whether the current element has had no child elements yet, in which case its end tag stays on the same line
+            boolean textOnly = false;
+            writer.writeStartDocument("UTF-8", "1.0");
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+                    case XMLEvent.START_ELEMENT:
+                        newLine(writer, depth, indent);
+                        skipWhitespace(reader);
+                        if (reader.peek() != null && reader.peek().isEndElement()) {
+                            reader.nextEvent();
+                            writeStartElement(writer, event.asStartElement(), true);
+                            textOnly = false;
+                        }
+                        else {
+                            writeStartElement(writer, event.asStartElement(), false);
+                            depth++;
+                            textOnly = true;
+                        }
+                        break;
+                    case XMLEvent.END_ELEMENT:
+                        depth--;
+                        if (!textOnly) {
+                            newLine(writer, depth, indent);
+                        }
+                        writer.writeEndElement();
+                        textOnly = false;
+                        break;
+                    case XMLEvent.CHARACTERS:
+                    case XMLEvent.CDATA:
+                        Characters characters = event.asCharacters();
+                        if (!characters.isWhiteSpace()) {
+                            if (characters.isCData()) {
+                                writer.writeCData(characters.getData());
+                            }
+                            else {
+                                writer.writeCharacters(characters.getData());
+                            }
+                        }
+                        break;
+                    case XMLEvent.COMMENT:
+                        newLine(writer, depth, indent);
+                        writer.writeComment(((Comment) event).getText());
+                        textOnly = false;
+                        break;
+                    case XMLEvent.PROCESSING_INSTRUCTION:
+                        newLine(writer, depth, indent);
+                        ProcessingInstruction pi = (ProcessingInstruction) event;
+                        writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                        textOnly = false;
+                        break;
+                    default:
+                        // START_DOCUMENT, END_DOCUMENT, SPACE, DTD: the declaration is always written, the others are dropped
+                        break;
+                }
+            }
+            writer.writeEndDocument();
+            writer.flush();
+            out.write("\n");
+            out.flush();
+        }
+        finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+    private static void skipWhitespace(XMLEventReader reader) throws XMLStreamException {
+        while (reader.peek() != null && reader.peek().isCharacters() && reader.peek().asCharacters().isWhiteSpace()) {
+            reader.nextEvent();
+        }
+    }
+
+    private static void writeStartElement(XMLStreamWriter writer, StartElement element, boolean empty) throws XMLStreamException {
+        QName name = element.getName();
+        if (empty) {
+            writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+        else {
+            writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+        for (Iterator<Namespace> namespaces = element.getNamespaces(); namespaces.hasNext(); ) {
+            Namespace namespace = namespaces.next();
+            if (namespace.isDefaultNamespaceDeclaration()) {
+                writer.writeDefaultNamespace(namespace.getNamespaceURI());
+            }
+            else {
+                writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+        }
+        for (Iterator<Attribute> attributes = element.getAttributes(); attributes.hasNext(); ) {
+            Attribute attribute = attributes.next();
+            QName attributeName = attribute.getName();
+            if (attributeName.getNamespaceURI().isEmpty()) {
+                writer.writeAttribute(attributeName.getLocalPart(), attribute.getValue());
+            }
+            else {
+                writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(), attributeName.getLocalPart(), attribute.getValue());
+            }
+        }
+    }
+
+    private static void newLine(XMLStreamWriter writer, int depth, int indent) throws XMLStreamException {
+        writer.writeCharacters("\n" + " ".repeat(depth * indent));
+    }
+}
@@ -34,7 +34,7 @@ public class ZipUtil {
                 String[] nextEntryDir = nextEntry.getName().split("/", 0);
                 if (!entryDir[0].equals(nextEntryDir[0])) {
                     System.err.println("ERROR: A bag may only contain a single root directory, please make sure " + zipFilePath + " adheres to the format. Aborting dataset submission." );
-                    System.exit(1);
+                    throw new DepositException("A bag may only contain a single root directory: " + zipFilePath, 1);
                 }
             }
             return entryDir[0];